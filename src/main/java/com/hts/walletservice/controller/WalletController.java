@@ -1,5 +1,6 @@
 package com.hts.walletservice.controller;
 
+import com.hts.walletservice.dto.request.ConfigureShardsRequest;
 import com.hts.walletservice.dto.request.CreateWalletRequest;
 import com.hts.walletservice.dto.request.DepositMoneyRequest;
 import com.hts.walletservice.dto.request.WithdrawWalletRequest;
@@ -55,6 +56,12 @@ public class WalletController {
         return walletService.withdrawMoney(userId, request.amount());
     }
 
+    @PutMapping("{userId}/shards")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<Wallet> configureShards(@PathVariable String userId, @RequestBody @Valid ConfigureShardsRequest request) {
+        return walletService.configureShards(userId, request.shardCount());
+    }
+
 
     @DeleteMapping("/{userId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
@@ -0,0 +1,17 @@
+package com.hts.walletservice.dto.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.experimental.FieldNameConstants;
+
+@FieldNameConstants
+public record ConfigureShardsRequest(
+
+        @NotNull(message = "Shard count cannot be null")
+        @Min(value = 1, message = "Shard count must be at least 1")
+        @Max(value = 64, message = "Shard count cannot be greater than 64")
+        Integer shardCount
+
+) {
+}
@@ -9,6 +9,7 @@ import org.springframework.data.relational.core.mapping.Table;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.UUID;
 
 @Data
@@ -23,10 +24,23 @@ public class Wallet extends AuditableData<Wallet> {
     private BigDecimal balance;
     private BigDecimal dailyDepositLimit;
 
+    /**
+    Running total of deposits for depositDay (UTC), reset by the first deposit of a new day
+    **/
+    private BigDecimal dailyDeposits;
+    private LocalDate  depositDay;
+
+    /**
+    When greater than 1 the balance is spread across wallet_balance_shards rows and the balance column stays at 0
+    **/
+    private Integer shardCount;
+
     public Wallet applyCreated(String userId, Instant now) {
         this.userId = userId;
         this.balance = BigDecimal.ZERO;
         this.dailyDepositLimit = BigDecimal.valueOf(1000);
+        this.dailyDeposits = BigDecimal.ZERO;
+        this.shardCount = 1;
         this.createdAt = now;
         this.updatedAt = now;
 
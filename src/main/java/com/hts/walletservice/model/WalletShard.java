@@ -0,0 +1,42 @@
+package com.hts.walletservice.model;
+
+import com.querydsl.core.annotations.QueryEntity;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+@Table("wallet_balance_shards")
+@QueryEntity
+public class WalletShard {
+
+    @Id
+    private UUID id;
+    private UUID walletId;
+    private Integer shardIndex;
+    private BigDecimal balance;
+    private BigDecimal dailyDeposits;
+    private BigDecimal dailyDepositLimit;
+    private LocalDate depositDay;
+    private Instant updatedAt;
+
+    public WalletShard applyCreated(Wallet wallet, Integer shardIndex, BigDecimal balance,
+                                    BigDecimal dailyDeposits, BigDecimal dailyDepositLimit,
+                                    LocalDate depositDay, Instant now) {
+        this.walletId = wallet.getId();
+        this.shardIndex = shardIndex;
+        this.balance = balance;
+        this.dailyDeposits = dailyDeposits;
+        this.dailyDepositLimit = dailyDepositLimit;
+        this.depositDay = depositDay;
+        this.updatedAt = now;
+
+        return this;
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.hts.walletservice.model;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record WalletShardBalance(
+        UUID       walletId,
+        BigDecimal balance
+) {
+}
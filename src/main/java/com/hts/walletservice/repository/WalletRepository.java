@@ -1,11 +1,15 @@
 package com.hts.walletservice.repository;
 
 import com.hts.walletservice.model.Wallet;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.UUID;
 
 public interface WalletRepository extends R2dbcRepository<Wallet, UUID> {
@@ -15,6 +19,29 @@ public interface WalletRepository extends R2dbcRepository<Wallet, UUID> {
 
     Mono<Wallet>  findByUserId(String userId);
 
+    @Query("SELECT * FROM wallets WHERE user_id = :userId FOR UPDATE")
+    Mono<Wallet>  findByUserIdForUpdate(String userId);
+
+    @Modifying
+    @Query("""
+            UPDATE wallets
+               SET balance        = balance + :amount,
+                   daily_deposits = CASE WHEN deposit_day = :day THEN daily_deposits ELSE 0 END + :amount,
+                   deposit_day    = :day,
+                   updated_at     = :now
+             WHERE id = :id AND shard_count = 1
+               AND CASE WHEN deposit_day = :day THEN daily_deposits ELSE 0 END + :amount <= daily_deposit_limit
+            """)
+    Mono<Integer> creditWithinDailyLimit(UUID id, BigDecimal amount, LocalDate day, Instant now);
+
+    @Modifying
+    @Query("""
+            UPDATE wallets
+               SET balance = balance - :amount, updated_at = :now
+             WHERE id = :id AND shard_count = 1 AND balance >= :amount
+            """)
+    Mono<Integer> debitIfSufficient(UUID id, BigDecimal amount, Instant now);
+
     Mono<Integer> deleteByUserId(String userId);
 
 }
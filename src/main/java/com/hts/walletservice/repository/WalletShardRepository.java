@@ -0,0 +1,55 @@
+package com.hts.walletservice.repository;
+
+import com.hts.walletservice.model.WalletShard;
+import com.hts.walletservice.model.WalletShardBalance;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface WalletShardRepository extends R2dbcRepository<WalletShard, UUID> {
+
+    @Query("SELECT COALESCE(SUM(balance), 0) FROM wallet_balance_shards WHERE wallet_id = :walletId")
+    Mono<BigDecimal> sumBalanceByWalletId(UUID walletId);
+
+    @Query("""
+            SELECT wallet_id, COALESCE(SUM(balance), 0) AS balance
+              FROM wallet_balance_shards
+             WHERE wallet_id IN (:walletIds)
+             GROUP BY wallet_id
+            """)
+    Flux<WalletShardBalance> sumBalanceByWalletIdIn(Collection<UUID> walletIds);
+
+    @Query("SELECT * FROM wallet_balance_shards WHERE wallet_id = :walletId ORDER BY shard_index FOR UPDATE")
+    Flux<WalletShard> findAllByWalletIdForUpdate(UUID walletId);
+
+    @Modifying
+    @Query("""
+            UPDATE wallet_balance_shards
+               SET balance        = balance + :amount,
+                   daily_deposits = CASE WHEN deposit_day = :day THEN daily_deposits ELSE 0 END + :amount,
+                   deposit_day    = :day,
+                   updated_at     = :now
+             WHERE wallet_id = :walletId AND shard_index = :shardIndex
+               AND CASE WHEN deposit_day = :day THEN daily_deposits ELSE 0 END + :amount <= daily_deposit_limit
+            """)
+    Mono<Integer> creditWithinDailyLimit(UUID walletId, int shardIndex, BigDecimal amount, LocalDate day, Instant now);
+
+    @Modifying
+    @Query("""
+            UPDATE wallet_balance_shards
+               SET balance = balance - :amount, updated_at = :now
+             WHERE wallet_id = :walletId AND shard_index = :shardIndex AND balance >= :amount
+            """)
+    Mono<Integer> debitIfSufficient(UUID walletId, int shardIndex, BigDecimal amount, Instant now);
+
+    Mono<Integer> deleteByWalletId(UUID walletId);
+
+}
@@ -22,4 +22,6 @@ public interface WalletService {
     Mono<Void> deleteWallet(String userId);
 
     Mono<Wallet> withdrawMoney(String userId,  BigDecimal amount);
+
+    Mono<Wallet> configureShards(String userId, Integer shardCount);
 }
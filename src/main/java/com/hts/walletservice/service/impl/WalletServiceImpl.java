@@ -5,24 +5,30 @@ import com.hts.walletservice.dto.response.PagedResponse;
 import com.hts.walletservice.model.Transaction;
 import com.hts.walletservice.model.Type;
 import com.hts.walletservice.model.Wallet;
+import com.hts.walletservice.model.WalletShard;
+import com.hts.walletservice.model.WalletShardBalance;
 import com.hts.walletservice.repository.TransactionRepository;
 import com.hts.walletservice.repository.WalletRepository;
+import com.hts.walletservice.repository.WalletShardRepository;
 import com.hts.walletservice.service.WalletService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
-import reactor.util.function.Tuples;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.Clock;
-import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 import static com.hts.walletservice.model.Type.DEPOSIT;
 import static com.hts.walletservice.model.Type.WITHDRAWAL;
@@ -32,10 +38,14 @@ import static com.hts.walletservice.model.Type.WITHDRAWAL;
 @RequiredArgsConstructor
 public class WalletServiceImpl implements WalletService {
 
+    private static final int SHARD_BALANCE_BATCH_SIZE = 100;
+
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
     private final Clock clock;
     private final WalletCache walletCache;
+    private final WalletShardRepository walletShardRepository;
+    private final TransactionalOperator transactionalOperator;
 
     @Override
     public Mono<Wallet> createWallet(String userId) {
@@ -59,19 +69,24 @@ public class WalletServiceImpl implements WalletService {
         return walletCache.get(userId)
                 .switchIfEmpty(walletRepository.findByUserId(userId)
                         .switchIfEmpty(Mono.error(notFound(userId)))
+                        .flatMap(this::withShardBalance)
                         .flatMap(walletCache::set)
                 );
     }
 
     @Override
     public Flux<Wallet> readCollection() {
-        return walletRepository.findAll();
+        return walletRepository.findAll()
+                .buffer(SHARD_BALANCE_BATCH_SIZE)
+                .concatMap(this::withShardBalances)
+                .flatMapIterable(wallets -> wallets);
     }
 
     @Override
     public Mono<PagedResponse> readCollection(Integer pageNumber, Integer size) {
         return walletRepository.findAllWithPagination(size, (pageNumber - 1) * size)
                 .collectList()
+                .flatMap(this::withShardBalances)
                 .zipWith(countAllWallets())
                 .map(tuple -> {
                     List<Wallet> wallets = tuple.getT1();
@@ -92,9 +107,9 @@ public class WalletServiceImpl implements WalletService {
     public Mono<Wallet> depositMoney(String userId, BigDecimal amount) {
         return walletRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(notFound(userId)))
-                .flatMap(this::getSumDeposits)
-                .flatMap(tuple -> validateDepositLimit(tuple, amount))
-                .flatMap(wallet -> updateWallet(wallet, amount))
+                .flatMap(wallet -> isSharded(wallet)
+                        ? creditShard(wallet, amount)
+                        : updateWallet(wallet, amount))
                 .flatMap(savedWallet -> createTransaction(savedWallet, DEPOSIT, amount, clock.instant())
                         .thenReturn(savedWallet))
                 .flatMap(savedWallet -> walletCache.remove(savedWallet.getUserId()).thenReturn(savedWallet));
@@ -113,52 +128,281 @@ public class WalletServiceImpl implements WalletService {
     public Mono<Wallet> withdrawMoney(String userId, BigDecimal amount) {
         return walletRepository.findByUserId(userId)
                 .switchIfEmpty(Mono.error(notFound(userId)))
-                .filter(wallet -> validateWithdrawalAmount(wallet, amount))
-                .switchIfEmpty(Mono.error(new ResponseStatusException(
-                        HttpStatus.BAD_REQUEST,
-                        "Insufficient Amount!!!")))
-                .flatMap(wallet -> {
-                    wallet.setBalance(wallet.getBalance().subtract(amount));
-                    wallet.setUpdatedAt(clock.instant());
-                    return walletRepository.save(wallet);
-                })
+                .flatMap(wallet -> isSharded(wallet)
+                        ? debitShards(wallet, amount)
+                        : debitWallet(wallet, amount))
                 .flatMap(savedWallet -> createTransaction(savedWallet, WITHDRAWAL, amount, clock.instant())
                         .thenReturn(savedWallet))
                 .flatMap(savedWallet -> walletCache.remove(savedWallet.getUserId()).thenReturn(savedWallet));
     }
 
-    private Mono<Tuple2<Wallet, BigDecimal>> getSumDeposits(Wallet wallet) {
-        return transactionRepository.findAllByWalletIdAndTypeAndTimestampAfter(
-                        wallet.getId(),
-                        DEPOSIT,
-                        clock.instant().minus(Duration.ofHours(24))
-                )
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .map(sumDeposits -> Tuples.of(wallet, sumDeposits));
-    }
-
-    private Mono<Wallet> validateDepositLimit(Tuple2<Wallet, BigDecimal> tuple, BigDecimal amount) {
-        var wallet = tuple.getT1();
-        var currentDayDeposits = tuple.getT2();
-        var totalIncludingNewDeposit = currentDayDeposits.add(amount);
-        var dailyLimit = wallet.getDailyDepositLimit();
-
-        if (totalIncludingNewDeposit.compareTo(dailyLimit) > 0) {
-            return Mono.error(new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST,
-                    String.format("Deposit limit exceeded. Limit: %s, Current: %s, Attempted: %s",
-                            dailyLimit, currentDayDeposits, amount)));
-        }
+    @Override
+    public Mono<Wallet> configureShards(String userId, Integer shardCount) {
+        log.info("Configuring {} balance shard(s) for userId: {}", shardCount, userId);
 
-        return Mono.just(wallet);
+        return walletRepository.findByUserIdForUpdate(userId)
+                .switchIfEmpty(Mono.error(notFound(userId)))
+                .flatMap(wallet -> walletShardRepository.findAllByWalletIdForUpdate(wallet.getId())
+                        .collectList()
+                        .flatMap(shards -> reshard(wallet, shards, shardCount)))
+                .as(transactionalOperator::transactional)
+                .flatMap(savedWallet -> walletCache.remove(savedWallet.getUserId()).thenReturn(savedWallet));
     }
 
+    /**
+    Unsharded balances are changed with a single conditional UPDATE rather than a read-modify-save, so a concurrent
+    configureShards can never be overwritten by a stale wallet row. The same statement enforces the daily limit.
+    **/
     private Mono<Wallet> updateWallet(Wallet wallet, BigDecimal amount) {
-        var balance = wallet.getBalance().add(amount);
-        wallet.setBalance(balance);
-        wallet.setUpdatedAt(clock.instant());
-        return walletRepository.save(wallet);
+        var now = clock.instant();
+        var day = dayOf(now);
+
+        return walletRepository.creditWithinDailyLimit(wallet.getId(), amount, day, now)
+                .flatMap(count -> walletRepository.findById(wallet.getId())
+                        .switchIfEmpty(Mono.error(notFound(wallet.getUserId())))
+                        .flatMap(current -> count > 0
+                                ? withShardBalance(current)
+                                : Mono.error(isSharded(current)
+                                        ? shardLayoutChanged(current.getUserId())
+                                        : depositLimitExceeded(current.getDailyDepositLimit(),
+                                                depositsOn(day, current.getDepositDay(), current.getDailyDeposits()),
+                                                amount))));
+    }
+
+    private Mono<Wallet> debitWallet(Wallet wallet, BigDecimal amount) {
+        if (!validateWithdrawalAmount(wallet, amount)) {
+            return Mono.error(insufficientAmount());
+        }
+
+        return walletRepository.debitIfSufficient(wallet.getId(), amount, clock.instant())
+                .flatMap(count -> walletRepository.findById(wallet.getId())
+                        .switchIfEmpty(Mono.error(notFound(wallet.getUserId())))
+                        .flatMap(current -> count > 0
+                                ? Mono.just(current)
+                                : Mono.error(isSharded(current)
+                                        ? shardLayoutChanged(current.getUserId())
+                                        : insufficientAmount())));
+    }
+
+    /**
+    Credits go to a random shard with a single UPDATE, so concurrent deposits only contend when they pick the same row.
+    Each shard owns an even share of the daily limit and the UPDATE only applies while the shard has room for the
+    amount. When it does not, the deposit is split across the remaining shards' headroom, mirroring debitShards.
+    **/
+    private Mono<Wallet> creditShard(Wallet wallet, BigDecimal amount) {
+        var now = clock.instant();
+        var day = dayOf(now);
+        var startShard = randomShard(wallet);
+
+        return walletShardRepository.creditWithinDailyLimit(wallet.getId(), startShard, amount, day, now)
+                .flatMap(count -> count > 0
+                        ? Mono.just(wallet)
+                        : creditAcrossShards(wallet, startShard, amount, day, now))
+                .flatMap(this::withShardBalance);
+    }
+
+    private Mono<Wallet> creditAcrossShards(Wallet wallet, int startShard, BigDecimal amount, LocalDate day, Instant now) {
+        return walletShardRepository.findAllByWalletIdForUpdate(wallet.getId())
+                .collectList()
+                .flatMap(shards -> {
+                    if (shards.isEmpty() || shards.size() != wallet.getShardCount()) {
+                        return shardLayoutChangedOrNotFound(wallet);
+                    }
+
+                    var currentDeposits = shards.stream()
+                            .map(shard -> depositsOn(day, shard.getDepositDay(), shard.getDailyDeposits()))
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    var headroom = shards.stream()
+                            .map(shard -> dailyHeadroom(shard, day))
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+                    if (headroom.compareTo(amount) < 0) {
+                        return Mono.<Wallet>error(depositLimitExceeded(
+                                wallet.getDailyDepositLimit(), currentDeposits, amount));
+                    }
+
+                    var remaining = amount;
+                    List<WalletShard> creditedShards = new ArrayList<>();
+                    for (int i = 0; i < shards.size() && remaining.signum() > 0; i++) {
+                        var shard = shards.get((startShard + i) % shards.size());
+                        var taken = dailyHeadroom(shard, day).min(remaining);
+                        if (taken.signum() <= 0) {
+                            continue;
+                        }
+
+                        shard.setDailyDeposits(depositsOn(day, shard.getDepositDay(), shard.getDailyDeposits()).add(taken));
+                        shard.setDepositDay(day);
+                        shard.setBalance(shard.getBalance().add(taken));
+                        shard.setUpdatedAt(now);
+                        remaining = remaining.subtract(taken);
+                        creditedShards.add(shard);
+                    }
+
+                    return walletShardRepository.saveAll(creditedShards).then(Mono.just(wallet));
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+    Tries to take the whole amount from one random shard first. When that shard runs short the remaining shards
+    are locked in index order and the amount is borrowed across them, starting from the shard that was picked.
+    **/
+    private Mono<Wallet> debitShards(Wallet wallet, BigDecimal amount) {
+        var now = clock.instant();
+        var startShard = randomShard(wallet);
+
+        return walletShardRepository.debitIfSufficient(wallet.getId(), startShard, amount, now)
+                .flatMap(count -> count > 0
+                        ? Mono.just(wallet)
+                        : borrowAcrossShards(wallet, startShard, amount, now))
+                .flatMap(this::withShardBalance);
+    }
+
+    private Mono<Wallet> borrowAcrossShards(Wallet wallet, int startShard, BigDecimal amount, Instant now) {
+        return walletShardRepository.findAllByWalletIdForUpdate(wallet.getId())
+                .collectList()
+                .flatMap(shards -> {
+                    if (shards.isEmpty() || shards.size() != wallet.getShardCount()) {
+                        return shardLayoutChangedOrNotFound(wallet);
+                    }
+
+                    var total = shards.stream()
+                            .map(WalletShard::getBalance)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+                    if (total.compareTo(amount) < 0) {
+                        return Mono.<Wallet>error(insufficientAmount());
+                    }
+
+                    var remaining = amount;
+                    List<WalletShard> debitedShards = new ArrayList<>();
+                    for (int i = 0; i < shards.size() && remaining.signum() > 0; i++) {
+                        var shard = shards.get((startShard + i) % shards.size());
+                        var taken = shard.getBalance().min(remaining);
+                        if (taken.signum() <= 0) {
+                            continue;
+                        }
+
+                        shard.setBalance(shard.getBalance().subtract(taken));
+                        shard.setUpdatedAt(now);
+                        remaining = remaining.subtract(taken);
+                        debitedShards.add(shard);
+                    }
+
+                    return walletShardRepository.saveAll(debitedShards).then(Mono.just(wallet));
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+    Collapses the current balance and today's deposits (wallet row plus any existing shards) and spreads them evenly
+    over the new shards, together with an even share of the daily limit. A shard count of 1 moves everything back onto
+    the wallets row.
+    **/
+    private Mono<Wallet> reshard(Wallet wallet, List<WalletShard> existingShards, Integer shardCount) {
+        var now = clock.instant();
+        var day = dayOf(now);
+        var total = existingShards.stream()
+                .map(WalletShard::getBalance)
+                .reduce(wallet.getBalance(), BigDecimal::add);
+        var todaysDeposits = existingShards.stream()
+                .map(shard -> depositsOn(day, shard.getDepositDay(), shard.getDailyDeposits()))
+                .reduce(depositsOn(day, wallet.getDepositDay(), wallet.getDailyDeposits()), BigDecimal::add);
+        List<WalletShard> shards = shardCount > 1
+                ? IntStream.range(0, shardCount)
+                        .mapToObj(index -> new WalletShard().applyCreated(wallet, index,
+                                shareOf(total, shardCount, index),
+                                shareOf(todaysDeposits, shardCount, index),
+                                shareOf(wallet.getDailyDepositLimit(), shardCount, index),
+                                day, now))
+                        .toList()
+                : List.of();
+
+        wallet.setShardCount(shardCount);
+        wallet.setBalance(shardCount > 1 ? BigDecimal.ZERO : total);
+        wallet.setDailyDeposits(shardCount > 1 ? BigDecimal.ZERO : todaysDeposits);
+        wallet.setDepositDay(day);
+        wallet.setUpdatedAt(now);
+
+        return walletShardRepository.deleteByWalletId(wallet.getId())
+                .thenMany(walletShardRepository.saveAll(shards))
+                .then(walletRepository.save(wallet))
+                .map(savedWallet -> {
+                    savedWallet.setBalance(total);
+                    return savedWallet;
+                });
+    }
+
+    private Mono<Wallet> withShardBalance(Wallet wallet) {
+        if (!isSharded(wallet)) {
+            return Mono.just(wallet);
+        }
+
+        return walletShardRepository.sumBalanceByWalletId(wallet.getId())
+                .map(balance -> {
+                    wallet.setBalance(balance);
+                    return wallet;
+                });
+    }
+
+    /**
+    Batch variant of withShardBalance for the list endpoints, one GROUP BY query for all sharded wallets in the batch.
+    **/
+    private Mono<List<Wallet>> withShardBalances(List<Wallet> wallets) {
+        var shardedWallets = wallets.stream()
+                .filter(this::isSharded)
+                .toList();
+
+        if (shardedWallets.isEmpty()) {
+            return Mono.just(wallets);
+        }
+
+        return walletShardRepository.sumBalanceByWalletIdIn(shardedWallets.stream().map(Wallet::getId).toList())
+                .collectMap(WalletShardBalance::walletId, WalletShardBalance::balance)
+                .map(balances -> {
+                    shardedWallets.forEach(wallet ->
+                            wallet.setBalance(balances.getOrDefault(wallet.getId(), BigDecimal.ZERO)));
+                    return wallets;
+                });
+    }
+
+    private boolean isSharded(Wallet wallet) {
+        return wallet.getShardCount() != null && wallet.getShardCount() > 1;
+    }
+
+    private int randomShard(Wallet wallet) {
+        return ThreadLocalRandom.current().nextInt(wallet.getShardCount());
+    }
+
+    private BigDecimal shareOf(BigDecimal total, int shardCount, int shardIndex) {
+        var share = total.divide(BigDecimal.valueOf(shardCount), 4, RoundingMode.DOWN);
+        return shardIndex == 0
+                ? total.subtract(share.multiply(BigDecimal.valueOf(shardCount - 1L)))
+                : share;
+    }
+
+    private LocalDate dayOf(Instant now) {
+        return LocalDate.ofInstant(now, clock.getZone());
+    }
+
+    private BigDecimal depositsOn(LocalDate day, LocalDate depositDay, BigDecimal dailyDeposits) {
+        return day.equals(depositDay) ? dailyDeposits : BigDecimal.ZERO;
+    }
+
+    private BigDecimal dailyHeadroom(WalletShard shard, LocalDate day) {
+        return shard.getDailyDepositLimit()
+                .subtract(depositsOn(day, shard.getDepositDay(), shard.getDailyDeposits()))
+                .max(BigDecimal.ZERO);
+    }
+
+    /**
+    An empty or resized shard list means either configureShards ran in between, or the wallet was deleted and its
+    shards cascaded with it
+    **/
+    private Mono<Wallet> shardLayoutChangedOrNotFound(Wallet wallet) {
+        return walletRepository.findById(wallet.getId())
+                .switchIfEmpty(Mono.error(notFound(wallet.getUserId())))
+                .then(Mono.<Wallet>error(shardLayoutChanged(wallet.getUserId())));
     }
 
     private Mono<Transaction> createTransaction(Wallet wallet, Type type, BigDecimal amount, Instant now) {
@@ -170,6 +414,23 @@ public class WalletServiceImpl implements WalletService {
         return wallet.getBalance().subtract(amount).compareTo(BigDecimal.ZERO) >= 0;
     }
 
+    private ResponseStatusException depositLimitExceeded(BigDecimal dailyLimit, BigDecimal currentDayDeposits,
+                                                         BigDecimal amount) {
+        return new ResponseStatusException(
+                HttpStatus.BAD_REQUEST,
+                String.format("Deposit limit exceeded. Limit: %s, Current: %s, Attempted: %s",
+                        dailyLimit, currentDayDeposits, amount));
+    }
+
+    private ResponseStatusException insufficientAmount() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Insufficient Amount!!!");
+    }
+
+    private ResponseStatusException shardLayoutChanged(String userId) {
+        return new ResponseStatusException(HttpStatus.CONFLICT,
+                "Wallet shards were reconfigured, please retry for userId: " + userId);
+    }
+
     private ResponseStatusException notFound(String userId) {
         return new ResponseStatusException(HttpStatus.NOT_FOUND,
                 "No wallet found for userId: " + userId);
@@ -0,0 +1,19 @@
+ALTER TABLE IF EXISTS wallets
+    ADD COLUMN IF NOT EXISTS shard_count INT DEFAULT 1 NOT NULL;
+
+CREATE TABLE IF NOT EXISTS wallet_balance_shards
+(
+    id          UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    wallet_id   UUID           NOT NULL,
+    shard_index INT            NOT NULL,
+    balance     DECIMAL(19, 4) DEFAULT 0 NOT NULL,
+    updated_at  TIMESTAMPTZ    NOT NULL,
+
+    FOREIGN KEY (wallet_id) REFERENCES wallets (id) ON DELETE CASCADE,
+    UNIQUE (wallet_id, shard_index)
+);
+
+/**
+  When shard_count is greater than 1 the wallet balance lives in these rows and wallets.balance stays at 0.
+  The UNIQUE (wallet_id, shard_index) constraint also gives us the index used for the per-shard updates.
+**/
\ No newline at end of file
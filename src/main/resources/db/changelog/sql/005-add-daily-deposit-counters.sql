@@ -0,0 +1,39 @@
+ALTER TABLE IF EXISTS wallets
+    ADD COLUMN IF NOT EXISTS deposit_day    DATE,
+    ADD COLUMN IF NOT EXISTS daily_deposits DECIMAL(19, 4) DEFAULT 0 NOT NULL;
+
+ALTER TABLE IF EXISTS wallet_balance_shards
+    ADD COLUMN IF NOT EXISTS deposit_day         DATE,
+    ADD COLUMN IF NOT EXISTS daily_deposits      DECIMAL(19, 4) DEFAULT 0 NOT NULL,
+    ADD COLUMN IF NOT EXISTS daily_deposit_limit DECIMAL(19, 4) DEFAULT 0 NOT NULL;
+
+-- existing shards get an even share of the wallet limit, shard 0 keeps the remainder --
+UPDATE wallet_balance_shards s
+   SET daily_deposit_limit = CASE
+           WHEN s.shard_index = 0
+               THEN w.daily_deposit_limit - TRUNC(w.daily_deposit_limit / w.shard_count, 4) * (w.shard_count - 1)
+           ELSE TRUNC(w.daily_deposit_limit / w.shard_count, 4)
+       END
+  FROM wallets w
+ WHERE w.id = s.wallet_id;
+
+-- carry over today's (UTC) deposits so the limit still holds across the deploy --
+UPDATE wallets w
+   SET deposit_day    = (NOW() AT TIME ZONE 'UTC')::DATE,
+       daily_deposits = t.total
+  FROM (SELECT wallet_id, SUM(amount) AS total
+          FROM transactions
+         WHERE type = 'DEPOSIT'
+           AND timestamp >= DATE_TRUNC('day', NOW() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+         GROUP BY wallet_id) t
+ WHERE w.id = t.wallet_id AND w.shard_count = 1;
+
+UPDATE wallet_balance_shards s
+   SET deposit_day    = (NOW() AT TIME ZONE 'UTC')::DATE,
+       daily_deposits = t.total
+  FROM (SELECT wallet_id, SUM(amount) AS total
+          FROM transactions
+         WHERE type = 'DEPOSIT'
+           AND timestamp >= DATE_TRUNC('day', NOW() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+         GROUP BY wallet_id) t
+ WHERE s.wallet_id = t.wallet_id AND s.shard_index = 0;
\ No newline at end of file
@@ -3,16 +3,34 @@ package com.hts.walletservice;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
 import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistrar;
+import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.utility.DockerImageName;
 
 @TestConfiguration(proxyBeanMethods = false)
 class TestcontainersConfiguration {
 
+    private static final int REDIS_PORT = 6379;
+
     @Bean
     @ServiceConnection
     PostgreSQLContainer<?> postgresContainer() {
         return new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
     }
 
+    @Bean
+    GenericContainer<?> redisContainer() {
+        return new GenericContainer<>(DockerImageName.parse("redis:6.2"))
+                .withExposedPorts(REDIS_PORT);
+    }
+
+    @Bean
+    DynamicPropertyRegistrar redisProperties(GenericContainer<?> redisContainer) {
+        return registry -> {
+            registry.add("spring.data.redis.host", redisContainer::getHost);
+            registry.add("spring.data.redis.port", () -> redisContainer.getMappedPort(REDIS_PORT));
+        };
+    }
+
 }
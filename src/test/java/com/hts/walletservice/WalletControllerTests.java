@@ -0,0 +1,83 @@
+package com.hts.walletservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureWebTestClient
+class WalletControllerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void configureShardsReturnsTheSummedBalance() {
+        var userId = createWallet();
+        webTestClient.post()
+                .uri("/api/wallets/{userId}/deposit", userId)
+                .bodyValue(Map.of("amount", 100))
+                .exchange()
+                .expectStatus().isOk();
+
+        configureShards(userId, 4)
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.userId").isEqualTo(userId)
+                .jsonPath("$.shardCount").isEqualTo(4)
+                .jsonPath("$.balance").value(balance -> assertThat(new BigDecimal(balance.toString()))
+                        .isEqualByComparingTo("100"));
+
+        webTestClient.get()
+                .uri("/api/wallets/{userId}", userId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.balance").value(balance -> assertThat(new BigDecimal(balance.toString()))
+                        .isEqualByComparingTo("100"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 65})
+    void configureShardsRejectsOutOfRangeCounts(int shardCount) {
+        configureShards(createWallet(), shardCount)
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void configureShardsReturnsNotFoundForUnknownUser() {
+        configureShards("unknown-" + UUID.randomUUID(), 4)
+                .expectStatus().isNotFound();
+    }
+
+    private String createWallet() {
+        var userId = "user-" + UUID.randomUUID();
+        webTestClient.post()
+                .uri("/api/wallets")
+                .bodyValue(Map.of("userId", userId))
+                .exchange()
+                .expectStatus().isCreated();
+
+        return userId;
+    }
+
+    private WebTestClient.ResponseSpec configureShards(String userId, int shardCount) {
+        return webTestClient.put()
+                .uri("/api/wallets/{userId}/shards", userId)
+                .bodyValue(Map.of("shardCount", shardCount))
+                .exchange();
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.hts.walletservice;
+
+import com.hts.walletservice.model.Wallet;
+import com.hts.walletservice.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class WalletShardingTests {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void newWalletStartsUnshardedAndWorksUnchanged() {
+        var wallet = createWallet();
+
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("50")).block();
+        var withdrawn = walletService.withdrawMoney(wallet.getUserId(), new BigDecimal("20")).block();
+
+        assertThat(wallet.getShardCount()).isEqualTo(1);
+        assertThat(withdrawn.getBalance()).isEqualByComparingTo("30");
+        assertThat(walletRowBalance(wallet.getId())).isEqualByComparingTo("30");
+        assertThat(shardBalances(wallet.getId())).isEmpty();
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("30");
+    }
+
+    @Test
+    void shardedDepositCreditsExactlyOneShard() {
+        var wallet = createWallet();
+        walletService.configureShards(wallet.getUserId(), 4).block();
+
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("10")).block();
+
+        var balances = shardBalances(wallet.getId());
+        assertThat(balances).hasSize(4);
+        assertThat(balances).filteredOn(balance -> balance.signum() != 0)
+                .singleElement()
+                .satisfies(balance -> assertThat(balance).isEqualByComparingTo("10"));
+        assertThat(walletRowBalance(wallet.getId())).isEqualByComparingTo("0");
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void withdrawalLargerThanAnyShardBorrowsAcrossShards() {
+        var wallet = createWallet();
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("100")).block();
+        walletService.configureShards(wallet.getUserId(), 4).block();
+
+        var withdrawn = walletService.withdrawMoney(wallet.getUserId(), new BigDecimal("60")).block();
+
+        var balances = shardBalances(wallet.getId());
+        assertThat(withdrawn.getBalance()).isEqualByComparingTo("40");
+        assertThat(balances).hasSize(4).allSatisfy(balance -> assertThat(balance.signum()).isNotNegative());
+        assertThat(sum(balances)).isEqualByComparingTo("40");
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("40");
+    }
+
+    @Test
+    void withdrawalLargerThanTotalChangesNothing() {
+        var wallet = createWallet();
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("100")).block();
+        walletService.configureShards(wallet.getUserId(), 4).block();
+        var balancesBefore = shardBalances(wallet.getId());
+        var transactionsBefore = transactionCount(wallet.getId());
+
+        StepVerifier.create(walletService.withdrawMoney(wallet.getUserId(), new BigDecimal("150")))
+                .expectErrorSatisfies(err -> assertThat(((ResponseStatusException) err).getStatusCode())
+                        .isEqualTo(HttpStatus.BAD_REQUEST))
+                .verify();
+
+        assertThat(shardBalances(wallet.getId())).isEqualTo(balancesBefore);
+        assertThat(transactionCount(wallet.getId())).isEqualTo(transactionsBefore);
+    }
+
+    @Test
+    void reshardingKeepsTheTotal() {
+        var wallet = createWallet();
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("100")).block();
+
+        walletService.configureShards(wallet.getUserId(), 3).block();
+
+        var balances = shardBalances(wallet.getId());
+        assertThat(balances).hasSize(3);
+        assertThat(balances.get(0)).isEqualByComparingTo("33.3334");
+        assertThat(balances.get(1)).isEqualByComparingTo("33.3333");
+        assertThat(balances.get(2)).isEqualByComparingTo("33.3333");
+        assertThat(walletRowBalance(wallet.getId())).isEqualByComparingTo("0");
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("100");
+
+        var unsharded = walletService.configureShards(wallet.getUserId(), 1).block();
+
+        assertThat(unsharded.getShardCount()).isEqualTo(1);
+        assertThat(shardBalances(wallet.getId())).isEmpty();
+        assertThat(walletRowBalance(wallet.getId())).isEqualByComparingTo("100");
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    void listEndpointsSumShardBalances() {
+        var unsharded = createWallet();
+        walletService.depositMoney(unsharded.getUserId(), new BigDecimal("30")).block();
+        var sharded = createWallet();
+        walletService.depositMoney(sharded.getUserId(), new BigDecimal("100")).block();
+        walletService.configureShards(sharded.getUserId(), 4).block();
+        walletService.withdrawMoney(sharded.getUserId(), new BigDecimal("0.5")).block();
+        var emptySharded = createWallet();
+        walletService.configureShards(emptySharded.getUserId(), 4).block();
+        var expected = Map.of(
+                unsharded.getId(), new BigDecimal("30"),
+                sharded.getId(), new BigDecimal("99.5"),
+                emptySharded.getId(), BigDecimal.ZERO);
+
+        assertBalances(walletService.readCollection().collectList().block(), expected);
+        assertBalances(walletService.readCollection(1, Integer.MAX_VALUE).block().data(), expected);
+    }
+
+    @Test
+    void concurrentShardedDepositsLoseNoUpdates() {
+        var wallet = createWallet();
+        walletService.configureShards(wallet.getUserId(), 8).block();
+
+        Flux.range(0, 200)
+                .flatMap(i -> walletService.depositMoney(wallet.getUserId(), BigDecimal.ONE), 16)
+                .blockLast();
+
+        var balances = shardBalances(wallet.getId());
+        assertThat(sum(balances)).isEqualByComparingTo("200");
+        assertThat(balances).filteredOn(balance -> balance.signum() > 0).hasSizeGreaterThan(1);
+        assertThat(transactionCount(wallet.getId())).isEqualTo(200L);
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("200");
+    }
+
+    @Test
+    void depositLargerThanAnyShardLimitSplitsAcrossShards() {
+        var wallet = createWallet();
+        walletService.configureShards(wallet.getUserId(), 4).block();
+
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("300")).block();
+
+        assertThat(sum(shardBalances(wallet.getId()))).isEqualByComparingTo("300");
+        assertThat(shardBalances(wallet.getId())).filteredOn(balance -> balance.signum() > 0).hasSizeGreaterThan(1);
+        StepVerifier.create(walletService.depositMoney(wallet.getUserId(), new BigDecimal("700.01")))
+                .expectErrorSatisfies(err -> assertThat(((ResponseStatusException) err).getStatusCode())
+                        .isEqualTo(HttpStatus.BAD_REQUEST))
+                .verify();
+        assertThat(walletService.depositMoney(wallet.getUserId(), new BigDecimal("700")).block().getBalance())
+                .isEqualByComparingTo("1000");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 8})
+    void concurrentDepositsNeverExceedTheDailyLimit(int shardCount) {
+        var wallet = createWallet();
+        walletService.configureShards(wallet.getUserId(), shardCount).block();
+        var succeeded = new AtomicInteger();
+        var rejected = new AtomicInteger();
+
+        Flux.range(0, 150)
+                .flatMap(i -> walletService.depositMoney(wallet.getUserId(), BigDecimal.TEN)
+                        .doOnNext(saved -> succeeded.incrementAndGet())
+                        .onErrorResume(ResponseStatusException.class, err -> {
+                            assertThat(err.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                            rejected.incrementAndGet();
+                            return Mono.empty();
+                        }), 16)
+                .blockLast();
+
+        assertThat(succeeded.get()).isEqualTo(100);
+        assertThat(rejected.get()).isEqualTo(50);
+        assertThat(walletService.getWallet(wallet.getUserId()).block().getBalance()).isEqualByComparingTo("1000");
+        assertThat(transactionCount(wallet.getId())).isEqualTo(100L);
+    }
+
+    @Test
+    void reshardingDuringUnshardedDepositsCreatesNoMoney() {
+        var wallet = createWallet();
+        walletService.depositMoney(wallet.getUserId(), new BigDecimal("100")).block();
+        var succeeded = new AtomicInteger();
+
+        var deposits = Flux.range(0, 100)
+                .flatMap(i -> walletService.depositMoney(wallet.getUserId(), BigDecimal.ONE)
+                        .doOnNext(saved -> succeeded.incrementAndGet())
+                        .onErrorResume(ResponseStatusException.class, err -> HttpStatus.CONFLICT.equals(err.getStatusCode())
+                                ? Mono.empty()
+                                : Mono.error(err)), 16)
+                .then();
+        var reshard = walletService.configureShards(wallet.getUserId(), 4).then();
+
+        Mono.when(deposits, reshard).block();
+
+        var expected = new BigDecimal("100").add(BigDecimal.valueOf(succeeded.get()));
+        assertThat(walletRowBalance(wallet.getId())).isEqualByComparingTo("0");
+        assertThat(sum(shardBalances(wallet.getId()))).isEqualByComparingTo(expected);
+        assertThat(walletService.configureShards(wallet.getUserId(), 1).block().getBalance())
+                .isEqualByComparingTo(expected);
+    }
+
+    private void assertBalances(List<Wallet> wallets, Map<UUID, BigDecimal> expected) {
+        var listed = wallets.stream()
+                .filter(wallet -> expected.containsKey(wallet.getId()))
+                .toList();
+
+        assertThat(listed).hasSize(expected.size());
+        listed.forEach(wallet -> assertThat(wallet.getBalance())
+                .as("balance of wallet %s", wallet.getId())
+                .isEqualByComparingTo(expected.get(wallet.getId())));
+    }
+
+    private Wallet createWallet() {
+        return walletService.createWallet("user-" + UUID.randomUUID()).block();
+    }
+
+    private List<BigDecimal> shardBalances(UUID walletId) {
+        return databaseClient.sql("SELECT balance FROM wallet_balance_shards WHERE wallet_id = :walletId ORDER BY shard_index")
+                .bind("walletId", walletId)
+                .map(row -> row.get("balance", BigDecimal.class))
+                .all()
+                .collectList()
+                .block();
+    }
+
+    private BigDecimal walletRowBalance(UUID walletId) {
+        return databaseClient.sql("SELECT balance FROM wallets WHERE id = :walletId")
+                .bind("walletId", walletId)
+                .map(row -> row.get("balance", BigDecimal.class))
+                .one()
+                .block();
+    }
+
+    private Long transactionCount(UUID walletId) {
+        return databaseClient.sql("SELECT COUNT(*) AS total FROM transactions WHERE wallet_id = :walletId")
+                .bind("walletId", walletId)
+                .map(row -> row.get("total", Long.class))
+                .one()
+                .block();
+    }
+
+    private BigDecimal sum(List<BigDecimal> balances) {
+        return balances.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+}